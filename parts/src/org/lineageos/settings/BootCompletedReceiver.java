@@ -32,6 +32,7 @@ public class BootCompletedReceiver extends BroadcastReceiver {
     public void onReceive(final Context context, Intent intent) {
         if (DEBUG)
             Log.d(TAG, "Received boot completed intent");
+        ThermalUtils.migrateLegacySettings(context);
         ThermalUtils.startService(context);
     }
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Reads and writes single-value sysfs, procfs and cgroup nodes below a
+ * configurable root, so that a fake tree can stand in for the real one.
+ */
+final class CgroupFs {
+
+    private static final String TAG = "CgroupFs";
+
+    private final File mRoot;
+
+    CgroupFs(File root) {
+        mRoot = root;
+    }
+
+    /** Returns the first line of the node, or null if it can't be read. */
+    String read(String path) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(new File(mRoot, path)))) {
+            String line = reader.readLine();
+            return line != null ? line.trim() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    boolean write(String path, String value) {
+        try (FileWriter writer = new FileWriter(new File(mRoot, path))) {
+            writer.write(value);
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write " + value + " to " + path, e);
+            return false;
+        }
+    }
+}
@@ -16,15 +16,22 @@ public class PerformanceModeSettingsFragment extends PreferenceFragment {
         super.onCreate(savedInstanceState);
         addPreferencesFromResource(R.xml.thermal_settings);
         
-        mThermalUtils = new ThermalUtils(getActivity());
+        mThermalUtils = ThermalUtils.getInstance(getActivity());
         mPerformanceModePreference = (SwitchPreference) findPreference("always_performance_mode");
-        mPerformanceModePreference.setChecked(mThermalUtils.isPerformanceModeEnabled());
         mPerformanceModePreference.setOnPreferenceChangeListener((preference, newValue) -> {
             mThermalUtils.setPerformanceModeEnabled((Boolean) newValue);
             return true;
         });
     }
 
+    @Override
+    public void onResume() {
+        super.onResume();
+        // The tile may have changed it meanwhile
+        mThermalUtils.reloadUserSettings();
+        mPerformanceModePreference.setChecked(mThermalUtils.isUserPerformanceModeEnabled());
+    }
+
     @Override
     public void onCreatePreferences(Bundle savedInstanceState, String rootKey) {
     }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.os.UserHandle;
+import android.service.quicksettings.Tile;
+import android.service.quicksettings.TileService;
+import android.text.format.DateFormat;
+
+import org.lineageos.settings.R;
+
+/**
+ * Starts a timed performance boost, or ends it when tapped again. A tap
+ * while "Always Use Performance Mode" is on turns it off, but turning it on
+ * is left to the settings screen behind a long-press. The tile runs as the
+ * current user, so its state is read from {@link ThermalSettingsProvider}
+ * in the ThermalService process, which runs the boost and owns the setting.
+ */
+public class PerformanceModeTileService extends TileService {
+
+    private boolean mPerformanceMode;
+    private long mBoostUntil;
+
+    @Override
+    public void onStartListening() {
+        super.onStartListening();
+        final Bundle state = getContentResolver().call(ThermalSettingsProvider.AUTHORITY,
+                ThermalSettingsProvider.METHOD_GET_TILE_STATE, null, null);
+        mPerformanceMode = state != null
+                && state.getBoolean(ThermalUserStore.PERFORMANCE_MODE_ENABLED);
+        mBoostUntil = state != null ? state.getLong(ThermalSettingsProvider.KEY_BOOST_UNTIL) : 0;
+        updateTile();
+    }
+
+    @Override
+    public void onClick() {
+        super.onClick();
+        final Intent intent = new Intent(this, ThermalService.class);
+        if (mPerformanceMode) {
+            intent.setAction(ThermalService.ACTION_SET_PERFORMANCE_MODE)
+                    .putExtra(ThermalService.EXTRA_USER_ID, getUserId())
+                    .putExtra(ThermalService.EXTRA_ENABLED, false);
+            mPerformanceMode = false;
+        } else if (mBoostUntil > SystemClock.elapsedRealtime()) {
+            intent.setAction(ThermalService.ACTION_STOP_BOOST);
+            mBoostUntil = 0;
+        } else {
+            final long durationMs = getResources().getInteger(
+                    R.integer.config_thermalBoostDurationMinutes) * 60_000L;
+            intent.setAction(ThermalService.ACTION_START_BOOST)
+                    .putExtra(ThermalService.EXTRA_DURATION_MS, durationMs);
+            mBoostUntil = SystemClock.elapsedRealtime() + durationMs;
+        }
+        startServiceAsUser(intent, UserHandle.CURRENT);
+        // Render the expected state right away, the service confirms it
+        updateTile();
+    }
+
+    private void updateTile() {
+        final Tile tile = getQsTile();
+        if (tile == null) {
+            return;
+        }
+        if (mPerformanceMode) {
+            tile.setState(Tile.STATE_ACTIVE);
+            tile.setSubtitle(getString(R.string.thermal_tile_always_on));
+        } else if (mBoostUntil > SystemClock.elapsedRealtime()) {
+            final long endMillis = System.currentTimeMillis()
+                    + mBoostUntil - SystemClock.elapsedRealtime();
+            tile.setState(Tile.STATE_ACTIVE);
+            tile.setSubtitle(getString(R.string.thermal_tile_boost_until,
+                    DateFormat.getTimeFormat(this).format(endMillis)));
+        } else {
+            tile.setState(Tile.STATE_INACTIVE);
+            tile.setSubtitle(null);
+        }
+        tile.updateTile();
+    }
+}
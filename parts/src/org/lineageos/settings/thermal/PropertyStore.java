@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+import android.os.SystemProperties;
+
+/**
+ * Minimal view of the system property service, so that mode switching can be
+ * exercised against an in-memory map instead of the real property area.
+ */
+interface PropertyStore {
+
+    String get(String key, String def);
+
+    /**
+     * Writes a property. Implementations throw a {@link RuntimeException} when
+     * the write is rejected, matching {@link SystemProperties#set}.
+     */
+    void set(String key, String value);
+
+    PropertyStore SYSTEM = new PropertyStore() {
+        @Override
+        public String get(String key, String def) {
+            return SystemProperties.get(key, def);
+        }
+
+        @Override
+        public void set(String key, String value) {
+            SystemProperties.set(key, value);
+        }
+    };
+}
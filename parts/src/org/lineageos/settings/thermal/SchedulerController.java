@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Applies the scheduler hints of the effective thermal profile to the
+ * foreground app and undoes them when it loses focus.
+ *
+ * Every change is recorded in a journal before it is made, so that a
+ * restarted service can undo whatever a crashed instance left behind.
+ */
+final class SchedulerController {
+
+    private static final String TAG = "SchedulerController";
+    private static final boolean DEBUG = false;
+
+    private static final String CPUCTL = "dev/cpuctl/";
+    private static final String CPUSET = "dev/cpuset";
+    private static final String CGROUP_PROCS = "/cgroup.procs";
+
+    // Journal entries: "W\t<path>\t<previous value>\t<our value>" restores a node,
+    // "M\t<pid>\t<previous cpuset>\t<our cpuset>" moves a process back
+    private static final String OP_WRITE = "W";
+    private static final String OP_MOVE = "M";
+
+    private final CgroupFs mFs;
+    private final File mJournal;
+    private final String mUclampGroup;
+
+    private final List<String[]> mApplied = new ArrayList<>();
+    private ThermalProfile mAppliedProfile;
+    private int[] mAppliedPids;
+
+    SchedulerController(CgroupFs fs, File journal, String uclampGroup) {
+        mFs = fs;
+        mJournal = journal;
+        mUclampGroup = uclampGroup;
+
+        // Undo anything left over from a previous instance
+        mApplied.addAll(readJournal());
+        revert();
+    }
+
+    /**
+     * Applies the profile's hints to the given processes, reverting the
+     * hints of the previously applied app first.
+     */
+    synchronized void apply(ThermalProfile profile, int[] pids) {
+        if (profile == mAppliedProfile && Arrays.equals(pids, mAppliedPids)) {
+            return;
+        }
+        revert();
+        if (profile == null || !profile.hasSchedHints()) {
+            return;
+        }
+
+        final List<String[]> entries = new ArrayList<>();
+        final List<String[]> writes = new ArrayList<>();
+        // uclamp has no per-process knob here, it applies to the whole group
+        addWrite(entries, writes, CPUCTL + mUclampGroup + "/cpu.uclamp.min", profile.uclampMin);
+        addWrite(entries, writes, CPUCTL + mUclampGroup + "/cpu.uclamp.max", profile.uclampMax);
+        if (profile.cpuset != null) {
+            final String target = "/" + profile.cpuset;
+            for (int pid : pids) {
+                final String current = mFs.read(procCpuset(pid));
+                if (current != null && !current.equals(target)) {
+                    entries.add(new String[] { OP_MOVE, String.valueOf(pid), current, target });
+                }
+            }
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        writeJournal(entries);
+        mApplied.addAll(entries);
+        mAppliedProfile = profile;
+        mAppliedPids = pids;
+
+        for (String[] write : writes) {
+            mFs.write(write[0], write[1]);
+        }
+        for (String[] entry : entries) {
+            if (OP_MOVE.equals(entry[0])) {
+                mFs.write(CPUSET + entry[3] + CGROUP_PROCS, entry[1]);
+            }
+        }
+        if (DEBUG) Log.d(TAG, "Applied " + profile + " hints to " + Arrays.toString(pids));
+    }
+
+    /**
+     * Restores everything changed by the last {@link #apply}.
+     */
+    synchronized void revert() {
+        // Undo in reverse order so repeated writes to a node end at the oldest value
+        for (int i = mApplied.size() - 1; i >= 0; i--) {
+            final String[] entry = mApplied.get(i);
+            if (OP_WRITE.equals(entry[0])) {
+                // Leave the node alone if someone else has written it since
+                if (isSameValue(entry[3], mFs.read(entry[1]))) {
+                    mFs.write(entry[1], entry[2]);
+                }
+            } else if (OP_MOVE.equals(entry[0])) {
+                // Leave the process alone if the framework has already moved it elsewhere
+                final int pid = Integer.parseInt(entry[1]);
+                if (entry[3].equals(mFs.read(procCpuset(pid)))) {
+                    mFs.write(CPUSET + entry[2] + CGROUP_PROCS, entry[1]);
+                }
+            }
+        }
+        if (DEBUG && !mApplied.isEmpty()) Log.d(TAG, "Reverted " + mAppliedProfile + " hints");
+
+        mApplied.clear();
+        mAppliedProfile = null;
+        mAppliedPids = null;
+        mJournal.delete();
+    }
+
+    synchronized void dump(PrintWriter pw) {
+        pw.println("SchedulerController:");
+        pw.println("  profile=" + mAppliedProfile + " pids=" + Arrays.toString(mAppliedPids));
+        for (String[] entry : mApplied) {
+            pw.println("  " + String.join(" ", entry));
+        }
+    }
+
+    private void addWrite(List<String[]> entries, List<String[]> writes, String path,
+            String value) {
+        if (value == null) {
+            return;
+        }
+        final String previous = mFs.read(path);
+        if (previous == null || isSameValue(value, previous)) {
+            return;
+        }
+        entries.add(new String[] { OP_WRITE, path, previous, value });
+        writes.add(new String[] { path, value });
+    }
+
+    /**
+     * Nodes may read back in another format than written, uclamp for
+     * instance reports "20" as "20.00", so numbers compare by value.
+     */
+    private static boolean isSameValue(String written, String current) {
+        if (current == null) {
+            return false;
+        }
+        if (current.equals(written)) {
+            return true;
+        }
+        try {
+            return Double.parseDouble(current) == Double.parseDouble(written);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static String procCpuset(int pid) {
+        return "proc/" + pid + "/cpuset";
+    }
+
+    private void writeJournal(List<String[]> entries) {
+        try (FileWriter writer = new FileWriter(mJournal)) {
+            for (String[] entry : entries) {
+                writer.write(String.join("\t", entry));
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write journal", e);
+        }
+    }
+
+    private List<String[]> readJournal() {
+        final List<String[]> entries = new ArrayList<>();
+        if (!mJournal.exists()) {
+            return entries;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(mJournal))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] entry = line.split("\t");
+                if ((OP_WRITE.equals(entry[0]) || OP_MOVE.equals(entry[0]))
+                        && entry.length == 4) {
+                    entries.add(entry);
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read journal", e);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.function.LongSupplier;
+
+/**
+ * Owns writes to vendor.thermal.mode. Every write is read back and retried,
+ * and the cached mode is resynchronised whenever the property was changed
+ * behind our back (setprop, another client, thermal-engine restart).
+ */
+final class ThermalModeController {
+
+    private static final String TAG = "ThermalModeController";
+    private static final boolean DEBUG = false;
+
+    static final String VENDOR_THERMAL_PROP = "vendor.thermal.mode";
+
+    private static final int MAX_APPLY_ATTEMPTS = 3;
+
+    private final PropertyStore mStore;
+    private final LongSupplier mClock;
+    private final String mFallbackMode;
+
+    private String mCurrentMode;
+    private long mLastApplyLatencyMs = -1;
+    private int mDriftCount;
+    private int mFailureCount;
+
+    ThermalModeController(PropertyStore store, LongSupplier clock, String fallbackMode) {
+        mStore = store;
+        mClock = clock;
+        mFallbackMode = fallbackMode;
+        mCurrentMode = readMode();
+    }
+
+    synchronized String getCurrentMode() {
+        sync();
+        return mCurrentMode;
+    }
+
+    /**
+     * Re-reads the property and adopts its value if it no longer matches
+     * the cache. Returns true if drift was detected.
+     */
+    synchronized boolean sync() {
+        final String actual = readMode();
+        if (actual.equals(mCurrentMode)) {
+            return false;
+        }
+        Log.w(TAG, "External change of " + VENDOR_THERMAL_PROP + ": expected "
+                + mCurrentMode + ", found " + actual);
+        mCurrentMode = actual;
+        mDriftCount++;
+        return true;
+    }
+
+    /**
+     * Switches to the given mode unless it is already in effect. Returns
+     * true once the property has been observed holding the new value.
+     */
+    synchronized boolean apply(String mode) {
+        sync();
+        if (mode.equals(mCurrentMode)) {
+            return true;
+        }
+
+        final long start = mClock.getAsLong();
+        for (int attempt = 1; attempt <= MAX_APPLY_ATTEMPTS; attempt++) {
+            try {
+                mStore.set(VENDOR_THERMAL_PROP, mode);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Failed to set " + VENDOR_THERMAL_PROP + "=" + mode
+                        + " (attempt " + attempt + ")", e);
+                continue;
+            }
+            if (mode.equals(readMode())) {
+                mCurrentMode = mode;
+                mLastApplyLatencyMs = mClock.getAsLong() - start;
+                if (DEBUG) Log.d(TAG, "Applied " + mode + " in " + mLastApplyLatencyMs
+                        + "ms after " + attempt + " attempt(s)");
+                return true;
+            }
+        }
+
+        mFailureCount++;
+        mCurrentMode = readMode();
+        Log.e(TAG, "Giving up on " + VENDOR_THERMAL_PROP + "=" + mode
+                + ", property holds " + mCurrentMode);
+        return false;
+    }
+
+    synchronized long getLastApplyLatencyMillis() {
+        return mLastApplyLatencyMs;
+    }
+
+    synchronized int getDriftCount() {
+        return mDriftCount;
+    }
+
+    synchronized int getFailureCount() {
+        return mFailureCount;
+    }
+
+    synchronized void dump(PrintWriter pw) {
+        pw.println("  mode=" + mCurrentMode + " (property=" + readMode() + ")");
+        pw.println("  lastApplyLatencyMs=" + mLastApplyLatencyMs);
+        pw.println("  driftCount=" + mDriftCount + " failureCount=" + mFailureCount);
+    }
+
+    private String readMode() {
+        final String mode = mStore.get(VENDOR_THERMAL_PROP, mFallbackMode);
+        return mode.isEmpty() ? mFallbackMode : mode;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.res.Resources;
+import android.os.BatteryManager;
+
+import org.lineageos.settings.R;
+
+import java.io.PrintWriter;
+
+/**
+ * Caps or lifts the thermal mode requested for the foreground app based on
+ * the last battery state seen. Inputs are reduced to a small set of flags so
+ * that callers only need to re-apply the mode when one of them flips.
+ */
+final class ThermalPolicy {
+
+    private static final int FLAG_LOW_BATTERY = 1 << 0;
+    private static final int FLAG_HOT_BATTERY = 1 << 1;
+    private static final int FLAG_CHARGING = 1 << 2;
+
+    // Hysteresis so that a level or temperature hovering at the threshold
+    // doesn't bounce the mode back and forth
+    private static final int LOW_BATTERY_HYSTERESIS = 2;
+    private static final int HOT_BATTERY_HYSTERESIS = 20;
+
+    private final int mLowBatteryLevel;
+    private final ThermalProfile mLowBatteryCap;
+    private final int mHotBatteryTemp;
+    private final ThermalProfile mHotBatteryCap;
+    private final int mChargingLiftPlugTypes;
+    private final ThermalProfile mChargingLift;
+
+    private int mLevel = -1;
+    private int mPlugged;
+    private int mTemperature;
+    private int mFlags;
+
+    ThermalPolicy(Context context, ThermalProfiles profiles) {
+        this(context.getResources(), profiles);
+        // Seed from the sticky broadcast without registering a receiver
+        Intent battery = context.registerReceiver(null,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery != null) {
+            onBatteryChanged(battery);
+        }
+    }
+
+    private ThermalPolicy(Resources res, ThermalProfiles profiles) {
+        this(res.getInteger(R.integer.config_thermalLowBatteryLevel),
+                getProfile(profiles, res.getString(R.string.config_thermalLowBatteryCapProfile)),
+                res.getInteger(R.integer.config_thermalHotBatteryTemp),
+                getProfile(profiles, res.getString(R.string.config_thermalHotBatteryCapProfile)),
+                res.getInteger(R.integer.config_thermalChargingLiftPlugTypes),
+                getProfile(profiles, res.getString(R.string.config_thermalChargingLiftProfile)));
+    }
+
+    private static ThermalProfile getProfile(ThermalProfiles profiles, String id) {
+        return id.isEmpty() ? null : profiles.requireProfile(id);
+    }
+
+    /**
+     * Null profiles disable the corresponding cap or lift.
+     */
+    ThermalPolicy(int lowBatteryLevel, ThermalProfile lowBatteryCap, int hotBatteryTemp,
+            ThermalProfile hotBatteryCap, int chargingLiftPlugTypes,
+            ThermalProfile chargingLift) {
+        mLowBatteryLevel = lowBatteryLevel;
+        mLowBatteryCap = lowBatteryCap;
+        mHotBatteryTemp = hotBatteryTemp;
+        mHotBatteryCap = hotBatteryCap;
+        mChargingLiftPlugTypes = chargingLiftPlugTypes;
+        mChargingLift = chargingLift;
+    }
+
+    /**
+     * Updates the cached battery inputs from an ACTION_BATTERY_CHANGED intent.
+     * Returns true if the outcome of {@link #apply} may have changed.
+     */
+    synchronized boolean onBatteryChanged(Intent intent) {
+        final int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        final int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, 100);
+        mLevel = level < 0 || scale <= 0 ? -1 : level * 100 / scale;
+        mPlugged = intent.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0);
+        mTemperature = intent.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, 0);
+
+        final int oldFlags = mFlags;
+        mFlags = computeFlags(oldFlags);
+        return mFlags != oldFlags;
+    }
+
+    private int computeFlags(int oldFlags) {
+        int flags = 0;
+
+        if (mLowBatteryLevel > 0 && mLevel >= 0 && mPlugged == 0) {
+            int threshold = mLowBatteryLevel;
+            if ((oldFlags & FLAG_LOW_BATTERY) != 0) {
+                threshold += LOW_BATTERY_HYSTERESIS;
+            }
+            if (mLevel <= threshold) {
+                flags |= FLAG_LOW_BATTERY;
+            }
+        }
+
+        if (mHotBatteryTemp > 0) {
+            int threshold = mHotBatteryTemp;
+            if ((oldFlags & FLAG_HOT_BATTERY) != 0) {
+                threshold -= HOT_BATTERY_HYSTERESIS;
+            }
+            if (mTemperature >= threshold) {
+                flags |= FLAG_HOT_BATTERY;
+            }
+        }
+
+        if ((mPlugged & mChargingLiftPlugTypes) != 0) {
+            flags |= FLAG_CHARGING;
+        }
+
+        return flags;
+    }
+
+    /**
+     * Returns the profile to actually apply for the requested one. The
+     * charging lift only applies to foreground app requests, so that a
+     * device charging with the screen off stays in the requested mode.
+     */
+    synchronized ThermalProfile apply(ThermalProfile requested, boolean foreground) {
+        final boolean hot = (mFlags & FLAG_HOT_BATTERY) != 0;
+        ThermalProfile profile = requested;
+        if (foreground && !hot && (mFlags & FLAG_CHARGING) != 0) {
+            profile = lift(profile, mChargingLift);
+        }
+        // Caps come last and stack, so the lowest active one wins
+        if (hot) {
+            profile = cap(profile, mHotBatteryCap);
+        }
+        if ((mFlags & FLAG_LOW_BATTERY) != 0) {
+            profile = cap(profile, mLowBatteryCap);
+        }
+        return profile;
+    }
+
+    synchronized void dump(PrintWriter pw) {
+        pw.println("ThermalPolicy:");
+        pw.println("  level=" + mLevel + " plugged=" + mPlugged
+                + " temperature=" + mTemperature);
+        pw.println("  lowBattery=" + ((mFlags & FLAG_LOW_BATTERY) != 0)
+                + " hotBattery=" + ((mFlags & FLAG_HOT_BATTERY) != 0)
+                + " charging=" + ((mFlags & FLAG_CHARGING) != 0));
+    }
+
+    private static ThermalProfile cap(ThermalProfile profile, ThermalProfile limit) {
+        if (limit == null) {
+            return profile;
+        }
+        return profile.rank > limit.rank ? limit : profile;
+    }
+
+    private static ThermalProfile lift(ThermalProfile profile, ThermalProfile floor) {
+        if (floor == null) {
+            return profile;
+        }
+        return profile.rank < floor.rank ? floor : profile;
+    }
+}
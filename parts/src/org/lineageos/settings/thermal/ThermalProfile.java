@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+/**
+ * A thermal profile as declared in res/xml/thermal_profiles.xml.
+ */
+final class ThermalProfile {
+
+    /** Position in the declaration, also the position in the UI picker */
+    final int index;
+    /** Stable key used when persisting per-app assignments */
+    final String id;
+    /** Value written to vendor.thermal.mode */
+    final String value;
+    /** Aggressiveness, higher allows more heat */
+    final int rank;
+    final int labelRes;
+    final int iconRes;
+
+    /** Optional scheduler hints for the foreground app, null when unset */
+    final String uclampMin;
+    final String uclampMax;
+    final String cpuset;
+
+    ThermalProfile(int index, String id, String value, int rank, int labelRes, int iconRes) {
+        this(index, id, value, rank, labelRes, iconRes, null, null, null);
+    }
+
+    ThermalProfile(int index, String id, String value, int rank, int labelRes, int iconRes,
+            String uclampMin, String uclampMax, String cpuset) {
+        this.index = index;
+        this.id = id;
+        this.value = value;
+        this.rank = rank;
+        this.labelRes = labelRes;
+        this.iconRes = iconRes;
+        this.uclampMin = uclampMin;
+        this.uclampMax = uclampMax;
+        this.cpuset = cpuset;
+    }
+
+    boolean hasSchedHints() {
+        return uclampMin != null || uclampMax != null || cpuset != null;
+    }
+
+    @Override
+    public String toString() {
+        return id + "(" + value + ")";
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Text format used to export and import per-app profiles:
+ *
+ * <pre>
+ * thermal-profiles 1
+ * [gaming]
+ * com.example.game
+ * [benchmark]
+ * com.example.benchmark
+ * </pre>
+ *
+ * Sections are profile ids from thermal_profiles.xml, blank lines and lines
+ * starting with '#' are ignored. Input is read line by line, so large files
+ * never need to be held in memory as a whole.
+ */
+final class ThermalProfileCodec {
+
+    private static final String HEADER = "thermal-profiles";
+    private static final int VERSION = 1;
+
+    private ThermalProfileCodec() {
+    }
+
+    static void write(ThermalProfileTable table, ThermalProfiles profiles, Writer out)
+            throws IOException {
+        List<List<String>> sections = new ArrayList<>();
+        for (int i = 0; i < profiles.size(); i++) {
+            sections.add(new ArrayList<>());
+        }
+        for (Map.Entry<String, ThermalProfile> entry : table.getAssignments().entrySet()) {
+            sections.get(entry.getValue().index).add(entry.getKey());
+        }
+
+        out.write(HEADER + " " + VERSION + "\n");
+        for (ThermalProfile profile : profiles.getAll()) {
+            List<String> packages = sections.get(profile.index);
+            if (packages.isEmpty()) {
+                continue;
+            }
+            Collections.sort(packages);
+            out.write("[" + profile.id + "]\n");
+            for (String packageName : packages) {
+                out.write(packageName);
+                out.write('\n');
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Applies every rule from the input to the given table and returns the
+     * number of rules read. The input is validated as it streams; on error
+     * an IOException is thrown and the caller should discard the table.
+     * Error messages only carry line numbers, never input content.
+     */
+    static int read(Reader in, ThermalProfiles profiles, ThermalProfileTable table)
+            throws IOException {
+        BufferedReader reader = new BufferedReader(in);
+        String line = reader.readLine();
+        if (line == null || !line.trim().equals(HEADER + " " + VERSION)) {
+            throw new IOException("Unsupported header");
+        }
+
+        ThermalProfile profile = null;
+        int lineNumber = 1;
+        int rules = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (line.startsWith("[") && line.endsWith("]")) {
+                String id = line.substring(1, line.length() - 1);
+                profile = profiles.getById(id);
+                if (profile == null) {
+                    throw new IOException("Line " + lineNumber + ": unknown profile");
+                }
+                continue;
+            }
+            if (profile == null) {
+                throw new IOException("Line " + lineNumber + ": package outside of a profile");
+            }
+            if (!isValidPackageName(line)) {
+                throw new IOException("Line " + lineNumber + ": invalid package name");
+            }
+            table.put(line, profile);
+            rules++;
+        }
+        return rules;
+    }
+
+    private static boolean isValidPackageName(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '.' && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
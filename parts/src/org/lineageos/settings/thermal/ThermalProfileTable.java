@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+import android.text.TextUtils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-app profile assignments. Persisted as "<id>=pkg,pkg,:<id>=pkg," with
+ * one section per non-default profile, which is compatible with the original
+ * "gaming=...:benchmark=..." format.
+ */
+final class ThermalProfileTable {
+
+    private final ThermalProfiles mProfiles;
+    private final Map<String, ThermalProfile> mAssignments = new HashMap<>();
+
+    ThermalProfileTable(ThermalProfiles profiles) {
+        mProfiles = profiles;
+    }
+
+    ThermalProfileTable(ThermalProfileTable other) {
+        mProfiles = other.mProfiles;
+        mAssignments.putAll(other.mAssignments);
+    }
+
+    static ThermalProfileTable parse(ThermalProfiles profiles, String value) {
+        ThermalProfileTable table = new ThermalProfileTable(profiles);
+        if (TextUtils.isEmpty(value)) {
+            return table;
+        }
+        for (String section : value.split(":")) {
+            int sep = section.indexOf('=');
+            if (sep < 0) {
+                continue;
+            }
+            // Assignments to profiles that are no longer declared fall back to default
+            ThermalProfile profile = profiles.getById(section.substring(0, sep));
+            if (profile == null) {
+                continue;
+            }
+            for (String packageName : section.substring(sep + 1).split(",")) {
+                if (!packageName.isEmpty()) {
+                    table.put(packageName, profile);
+                }
+            }
+        }
+        return table;
+    }
+
+    ThermalProfile get(String packageName) {
+        ThermalProfile profile = mAssignments.get(packageName);
+        return profile != null ? profile : mProfiles.getDefault();
+    }
+
+    void put(String packageName, ThermalProfile profile) {
+        if (profile == mProfiles.getDefault()) {
+            mAssignments.remove(packageName);
+        } else {
+            mAssignments.put(packageName, profile);
+        }
+    }
+
+    int size() {
+        return mAssignments.size();
+    }
+
+    /** Packages with a non-default profile. */
+    Map<String, ThermalProfile> getAssignments() {
+        return Collections.unmodifiableMap(mAssignments);
+    }
+
+    String serialize() {
+        StringBuilder[] sections = new StringBuilder[mProfiles.size()];
+        for (Map.Entry<String, ThermalProfile> entry : mAssignments.entrySet()) {
+            int index = entry.getValue().index;
+            if (sections[index] == null) {
+                sections[index] = new StringBuilder();
+            }
+            sections[index].append(entry.getKey()).append(',');
+        }
+
+        StringBuilder value = new StringBuilder();
+        for (ThermalProfile profile : mProfiles.getAll()) {
+            if (profile == mProfiles.getDefault()) {
+                continue;
+            }
+            if (value.length() > 0) {
+                value.append(':');
+            }
+            value.append(profile.id).append('=');
+            if (sections[profile.index] != null) {
+                value.append(sections[profile.index]);
+            }
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.XmlResourceParser;
+
+import org.lineageos.settings.R;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Registry of the thermal profiles declared in res/xml/thermal_profiles.xml.
+ * Loaded once per process and immutable afterwards.
+ */
+final class ThermalProfiles {
+
+    private static final String TAG_PROFILES = "thermal-profiles";
+    private static final String TAG_PROFILE = "profile";
+
+    private static ThermalProfiles sInstance;
+
+    private final List<ThermalProfile> mProfiles;
+    private final Map<String, ThermalProfile> mById = new HashMap<>();
+    private final ThermalProfile mDefault;
+    private final ThermalProfile mPerformance;
+
+    static synchronized ThermalProfiles get(Context context) {
+        if (sInstance == null) {
+            sInstance = load(context.getResources());
+        }
+        return sInstance;
+    }
+
+    ThermalProfiles(List<ThermalProfile> profiles, String defaultId, String performanceId) {
+        mProfiles = Collections.unmodifiableList(new ArrayList<>(profiles));
+        Set<String> values = new HashSet<>();
+        for (ThermalProfile profile : mProfiles) {
+            if (mById.put(profile.id, profile) != null) {
+                throw new IllegalArgumentException("Duplicate thermal profile id " + profile.id);
+            }
+            if (!values.add(profile.value)) {
+                throw new IllegalArgumentException("Duplicate thermal profile value "
+                        + profile.value + " in " + profile.id);
+            }
+        }
+        mDefault = requireProfile(defaultId);
+        mPerformance = requireProfile(performanceId);
+    }
+
+    List<ThermalProfile> getAll() {
+        return mProfiles;
+    }
+
+    int size() {
+        return mProfiles.size();
+    }
+
+    ThermalProfile get(int index) {
+        return mProfiles.get(index);
+    }
+
+    /** Returns the profile with the given id, or null if there is none. */
+    ThermalProfile getById(String id) {
+        return mById.get(id);
+    }
+
+    ThermalProfile getDefault() {
+        return mDefault;
+    }
+
+    ThermalProfile getPerformanceProfile() {
+        return mPerformance;
+    }
+
+    /** Returns the profile with the given id, throwing if there is none. */
+    ThermalProfile requireProfile(String id) {
+        ThermalProfile profile = mById.get(id);
+        if (profile == null) {
+            throw new IllegalArgumentException("Unknown thermal profile " + id);
+        }
+        return profile;
+    }
+
+    private static ThermalProfiles load(Resources res) {
+        List<ThermalProfile> profiles = new ArrayList<>();
+        String defaultId = null;
+        String performanceId = null;
+
+        try (XmlResourceParser parser = res.getXml(R.xml.thermal_profiles)) {
+            int type;
+            while ((type = parser.next()) != XmlPullParser.END_DOCUMENT) {
+                if (type != XmlPullParser.START_TAG) {
+                    continue;
+                }
+                switch (parser.getName()) {
+                    case TAG_PROFILES:
+                        defaultId = parser.getAttributeValue(null, "default");
+                        performanceId = parser.getAttributeValue(null, "performance");
+                        break;
+                    case TAG_PROFILE:
+                        profiles.add(new ThermalProfile(profiles.size(),
+                                requireAttribute(parser, "id"),
+                                requireAttribute(parser, "value"),
+                                Integer.parseInt(requireAttribute(parser, "rank")),
+                                requireResource(parser, "label"),
+                                requireResource(parser, "icon"),
+                                parser.getAttributeValue(null, "uclampMin"),
+                                parser.getAttributeValue(null, "uclampMax"),
+                                parser.getAttributeValue(null, "cpuset")));
+                        break;
+                }
+            }
+        } catch (XmlPullParserException | IOException | NumberFormatException e) {
+            throw new IllegalStateException("Failed to parse thermal profiles", e);
+        }
+
+        return new ThermalProfiles(profiles, defaultId, performanceId);
+    }
+
+    private static String requireAttribute(XmlResourceParser parser, String name) {
+        String value = parser.getAttributeValue(null, name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalStateException("Missing " + name + " attribute at "
+                    + parser.getPositionDescription());
+        }
+        return value;
+    }
+
+    private static int requireResource(XmlResourceParser parser, String name) {
+        int res = parser.getAttributeResourceValue(null, name, 0);
+        if (res == 0) {
+            throw new IllegalStateException("Missing " + name + " resource at "
+                    + parser.getPositionDescription());
+        }
+        return res;
+    }
+}
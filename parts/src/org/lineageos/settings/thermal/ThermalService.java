@@ -17,47 +17,184 @@
 package org.lineageos.settings.thermal;
 
 import android.app.ActivityManager;
+import android.app.AlarmManager;
 import android.app.ActivityTaskManager;
 import android.app.ActivityTaskManager.RootTaskInfo;
 import android.app.IActivityTaskManager;
 import android.app.TaskStackListener;
 import android.app.Service;
 import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.res.Resources;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
 import android.os.RemoteException;
+import android.os.SystemClock;
+import android.os.UserHandle;
+import android.service.quicksettings.TileService;
 import android.util.Log;
 
+import org.lineageos.settings.R;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public class ThermalService extends Service {
 
     private static final String TAG = "ThermalService";
     private static final boolean DEBUG = false;
 
+    /**
+     * Per-app profiles can be provisioned in bulk, in the format described in
+     * {@link ThermalProfileCodec}, either by starting the service with one of
+     * these actions and a content:// URI as intent data, which needs the
+     * signature MANAGE_THERMAL_PROFILES permission, or from the shell:
+     *
+     *   dumpsys activity service org.lineageos.settings/.thermal.ThermalService \
+     *           import [--merge] <name>
+     *   dumpsys activity service org.lineageos.settings/.thermal.ThermalService export
+     *
+     * The shell can only import files from the app's external files directory,
+     * /sdcard/Android/data/org.lineageos.settings/files, given by name.
+     * An import replaces all per-app profiles unless merging is requested.
+     */
+    public static final String ACTION_IMPORT_PROFILES =
+            "org.lineageos.settings.thermal.action.IMPORT_PROFILES";
+    public static final String ACTION_EXPORT_PROFILES =
+            "org.lineageos.settings.thermal.action.EXPORT_PROFILES";
+    public static final String EXTRA_MERGE = "merge";
+
+    /**
+     * Uses the performance profile for every app for EXTRA_DURATION_MS, or
+     * config_thermalBoostDurationMinutes if unset, then reverts.
+     */
+    public static final String ACTION_START_BOOST =
+            "org.lineageos.settings.thermal.action.START_BOOST";
+    public static final String ACTION_STOP_BOOST =
+            "org.lineageos.settings.thermal.action.STOP_BOOST";
+    public static final String EXTRA_DURATION_MS = "duration_ms";
+
+    // Settings changes from the UI. This process is the only writer of the
+    // per-user settings, so that changes made from another user's process
+    // can't overwrite imports or each other. EXTRA_USER_ID names the user
+    // whose settings change, the active one if unset.
+
+    /**
+     * Turns "Always Use Performance Mode" on or off as given by EXTRA_ENABLED.
+     * Turning it on for the active user ends a running boost.
+     */
+    public static final String ACTION_SET_PERFORMANCE_MODE =
+            "org.lineageos.settings.thermal.action.SET_PERFORMANCE_MODE";
+    /** Assigns the profile with id EXTRA_PROFILE to EXTRA_PACKAGE */
+    public static final String ACTION_SET_PACKAGE_PROFILE =
+            "org.lineageos.settings.thermal.action.SET_PACKAGE_PROFILE";
+    /**
+     * One-time hand-over of the EXTRA_TABLE and EXTRA_ENABLED settings that
+     * earlier versions kept in each user's own preferences.
+     */
+    public static final String ACTION_MIGRATE_SETTINGS =
+            "org.lineageos.settings.thermal.action.MIGRATE_SETTINGS";
+    public static final String EXTRA_ENABLED = "enabled";
+    public static final String EXTRA_TABLE = "table";
+    public static final String EXTRA_PACKAGE = "package";
+    public static final String EXTRA_PROFILE = "profile";
+    public static final String EXTRA_USER_ID = "user_id";
+
+    private static final String SCHED_JOURNAL = "sched_hints.journal";
+
     private String mPreviousApp;
     private ThermalUtils mThermalUtils;
+    private SchedulerController mSchedulerController;  // null unless hints are enabled
 
     private IActivityTaskManager mActivityTaskManager;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    // Imports and exports do file IO and parsing, keep them off the main thread
+    private HandlerThread mWorkerThread;
+    private Handler mWorkerHandler;
+
+    private final AlarmManager.OnAlarmListener mBoostEndListener = () -> {
+        if (DEBUG) Log.d(TAG, "Boost ended");
+        stopBoost();
+    };
 
     private BroadcastReceiver mIntentReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
             mPreviousApp = "";
             mThermalUtils.setDefaultThermalProfile();
+            applySchedulerHints(null, null);
+        }
+    };
+
+    private BroadcastReceiver mUserReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final int userId = intent.getIntExtra(Intent.EXTRA_USER_HANDLE, -1);
+            if (userId < 0) {
+                return;
+            }
+            final boolean changed = Intent.ACTION_USER_SWITCHED.equals(intent.getAction())
+                    ? mThermalUtils.switchUser(userId)
+                    : mThermalUtils.onUserUnlocked(userId);
+            if (changed) {
+                // Don't wait for the next task stack change
+                if (DEBUG) Log.d(TAG, "Active profiles changed to user " + userId);
+                updateForegroundApp(true);
+            }
+        }
+    };
+
+    private BroadcastReceiver mBatteryReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            // Battery broadcasts are frequent, only re-apply when the policy outcome may change
+            if (mThermalUtils.onBatteryChanged(intent)) {
+                if (DEBUG) Log.d(TAG, "Battery policy changed, re-evaluating " + mPreviousApp);
+                reapplyThermalProfile();
+            }
         }
     };
 
     @Override
     public void onCreate() {
         if (DEBUG) Log.d(TAG, "Creating service");
+        mThermalUtils = ThermalUtils.getInstance(this);
+        mThermalUtils.switchUser(ActivityManager.getCurrentUser());
+        mWorkerThread = new HandlerThread(TAG);
+        mWorkerThread.start();
+        mWorkerHandler = new Handler(mWorkerThread.getLooper());
+        final Resources res = getResources();
+        if (res.getBoolean(R.bool.config_thermalSchedHintsEnabled)) {
+            mSchedulerController = new SchedulerController(
+                    new CgroupFs(new File(res.getString(R.string.config_thermalSchedRoot))),
+                    new File(getNoBackupFilesDir(), SCHED_JOURNAL),
+                    res.getString(R.string.config_thermalSchedUclampGroup));
+        }
         try {
             mActivityTaskManager = ActivityTaskManager.getService();
             mActivityTaskManager.registerTaskStackListener(mTaskListener);
         } catch (RemoteException e) {
             // Do nothing
         }
-        mThermalUtils = new ThermalUtils(this);
         registerReceiver();
         super.onCreate();
     }
@@ -65,37 +202,312 @@ public class ThermalService extends Service {
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         if (DEBUG) Log.d(TAG, "Starting service");
+        if (intent != null && ACTION_START_BOOST.equals(intent.getAction())) {
+            final long defaultDuration = getResources().getInteger(
+                    R.integer.config_thermalBoostDurationMinutes) * 60_000L;
+            startBoost(intent.getLongExtra(EXTRA_DURATION_MS, defaultDuration));
+        } else if (intent != null && ACTION_STOP_BOOST.equals(intent.getAction())) {
+            stopBoost();
+        } else if (intent != null && ACTION_SET_PERFORMANCE_MODE.equals(intent.getAction())) {
+            final boolean enabled = intent.getBooleanExtra(EXTRA_ENABLED, false);
+            if (mThermalUtils.savePerformanceModeEnabled(getUserId(intent), enabled)) {
+                if (enabled) {
+                    getSystemService(AlarmManager.class).cancel(mBoostEndListener);
+                    mThermalUtils.setBoostUntil(0);
+                }
+                reapplyThermalProfile();
+                refreshTile();
+            }
+        } else if (intent != null && ACTION_MIGRATE_SETTINGS.equals(intent.getAction())) {
+            final int userId = getUserId(intent);
+            final String table = intent.getStringExtra(EXTRA_TABLE);
+            final boolean enabled = intent.getBooleanExtra(EXTRA_ENABLED, false);
+            mWorkerHandler.post(() -> {
+                if (mThermalUtils.saveLegacySettings(userId, table, enabled)) {
+                    mHandler.post(this::reapplyThermalProfile);
+                }
+            });
+        } else if (intent != null && ACTION_SET_PACKAGE_PROFILE.equals(intent.getAction())) {
+            setPackageProfile(getUserId(intent), intent.getStringExtra(EXTRA_PACKAGE),
+                    mThermalUtils.getProfiles().getById(intent.getStringExtra(EXTRA_PROFILE)));
+        } else if (intent != null && intent.getData() != null) {
+            final Uri uri = intent.getData();
+            // Anything else, file:// in particular, would be opened with our uid
+            if (!ContentResolver.SCHEME_CONTENT.equals(uri.getScheme())) {
+                Log.w(TAG, "Ignoring " + intent.getAction() + " for a non-content URI");
+                return START_STICKY;
+            }
+            if (ACTION_IMPORT_PROFILES.equals(intent.getAction())) {
+                final boolean merge = intent.getBooleanExtra(EXTRA_MERGE, false);
+                mWorkerHandler.post(() -> importProfiles(uri, merge));
+            } else if (ACTION_EXPORT_PROFILES.equals(intent.getAction())) {
+                mWorkerHandler.post(() -> exportProfiles(uri));
+            }
+        }
         return START_STICKY;
     }
 
+    private int getUserId(Intent intent) {
+        return intent.getIntExtra(EXTRA_USER_ID, mThermalUtils.getActiveUserId());
+    }
+
+    /**
+     * Runs on the worker so that it is ordered with imports, which replace
+     * the same table.
+     */
+    private void setPackageProfile(int userId, String packageName, ThermalProfile profile) {
+        if (packageName == null || profile == null) {
+            Log.w(TAG, "Ignoring incomplete profile assignment");
+            return;
+        }
+        mWorkerHandler.post(() -> {
+            if (mThermalUtils.savePackageProfile(userId, packageName, profile)) {
+                mHandler.post(this::reapplyThermalProfile);
+            }
+        });
+    }
+
     @Override
     public IBinder onBind(Intent intent) {
         return null;
     }
 
+    @Override
+    public void onDestroy() {
+        try {
+            mActivityTaskManager.unregisterTaskStackListener(mTaskListener);
+        } catch (RemoteException e) {
+            // Do nothing
+        }
+        unregisterReceiver(mIntentReceiver);
+        unregisterReceiver(mBatteryReceiver);
+        unregisterReceiver(mUserReceiver);
+        getSystemService(AlarmManager.class).cancel(mBoostEndListener);
+        mWorkerThread.quitSafely();
+        mThermalUtils.setBoostUntil(0);
+        if (mSchedulerController != null) {
+            mSchedulerController.revert();
+        }
+        super.onDestroy();
+    }
+
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+        if (args != null && args.length > 0) {
+            dumpCommand(fd, pw, args);
+            return;
+        }
+        pw.println("foregroundApp=" + mPreviousApp);
+        mThermalUtils.dump(pw);
+        if (mSchedulerController != null) {
+            mSchedulerController.dump(pw);
+        }
+    }
+
+    private void dumpCommand(FileDescriptor fd, PrintWriter pw, String[] args) {
+        try {
+            if ("export".equals(args[0])) {
+                ThermalProfileCodec.write(mThermalUtils.copyTable(mThermalUtils.getActiveUserId()),
+                        mThermalUtils.getProfiles(), pw);
+                return;
+            }
+            final boolean merge = args.length == 3 && "--merge".equals(args[1]);
+            final boolean replace = args.length == 2 && !args[1].startsWith("-");
+            if ("import".equals(args[0]) && (replace || merge)) {
+                final File file = getImportFile(args[args.length - 1]);
+                if (file == null) {
+                    pw.println("Expected the name of a file in " + getExternalFilesDir(null));
+                    return;
+                }
+                // dump() runs on the main thread. The worker reports through its own
+                // copy of the output, which dumpsys reads until the worker closes it
+                final ParcelFileDescriptor out = ParcelFileDescriptor.dup(fd);
+                mWorkerHandler.post(() -> importProfiles(file, merge, out));
+                return;
+            }
+            pw.println("Usage: import [--merge] <name> | export");
+        } catch (IOException e) {
+            pw.println("Failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Resolves a shell supplied name inside the app's external files directory,
+     * returns null for anything that would point elsewhere.
+     */
+    private File getImportFile(String name) {
+        final File dir = getExternalFilesDir(null);
+        if (dir == null || name.isEmpty() || name.contains(File.separator)
+                || name.equals(".") || name.equals("..")) {
+            return null;
+        }
+        return new File(dir, name);
+    }
+
+    private void importProfiles(File file, boolean merge, ParcelFileDescriptor out) {
+        try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(
+                new ParcelFileDescriptor.AutoCloseOutputStream(out), StandardCharsets.UTF_8))) {
+            try (InputStream in = new FileInputStream(file)) {
+                pw.println("Imported " + importProfiles(in, merge) + " rules");
+            } catch (IOException e) {
+                pw.println("Failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void importProfiles(Uri uri, boolean merge) {
+        try (InputStream in = getContentResolver().openInputStream(uri)) {
+            if (in == null) {
+                throw new IOException("Cannot open " + uri);
+            }
+            final int rules = importProfiles(in, merge);
+            if (DEBUG) Log.d(TAG, "Imported " + rules + " rules from " + uri);
+        } catch (IOException | SecurityException e) {
+            Log.e(TAG, "Failed to import profiles from " + uri, e);
+        }
+    }
+
+    /**
+     * Parses the whole input into a new table before touching the stored one,
+     * so a malformed file leaves the current profiles untouched. The result is
+     * persisted with a single flush and costs a single re-evaluation.
+     */
+    private int importProfiles(InputStream in, boolean merge) throws IOException {
+        // Resolved once, so that a user switch while parsing can't redirect the result
+        final int userId = mThermalUtils.getActiveUserId();
+        final ThermalProfileTable table = merge ? mThermalUtils.copyTable(userId)
+                : new ThermalProfileTable(mThermalUtils.getProfiles());
+        final int rules = ThermalProfileCodec.read(
+                new InputStreamReader(in, StandardCharsets.UTF_8),
+                mThermalUtils.getProfiles(), table);
+        if (!mThermalUtils.replaceTable(userId, table)) {
+            throw new IOException("Failed to persist imported profiles");
+        }
+        mHandler.post(this::reapplyThermalProfile);
+        return rules;
+    }
+
+    private void exportProfiles(Uri uri) {
+        try (OutputStream out = getContentResolver().openOutputStream(uri)) {
+            if (out == null) {
+                throw new IOException("Cannot open " + uri);
+            }
+            ThermalProfileCodec.write(mThermalUtils.copyTable(mThermalUtils.getActiveUserId()),
+                    mThermalUtils.getProfiles(),
+                    new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        } catch (IOException | SecurityException e) {
+            Log.e(TAG, "Failed to export profiles to " + uri, e);
+        }
+    }
+
     private void registerReceiver() {
         IntentFilter filter = new IntentFilter();
         filter.addAction(Intent.ACTION_SCREEN_OFF);
         filter.addAction(Intent.ACTION_SCREEN_ON);
         this.registerReceiver(mIntentReceiver, filter);
+        this.registerReceiver(mBatteryReceiver,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        IntentFilter userFilter = new IntentFilter();
+        userFilter.addAction(Intent.ACTION_USER_SWITCHED);
+        userFilter.addAction(Intent.ACTION_USER_UNLOCKED);
+        this.registerReceiverForAllUsers(mUserReceiver, userFilter, null, null);
+    }
+
+    private void reapplyThermalProfile() {
+        if (mPreviousApp == null || mPreviousApp.isEmpty()) {
+            mThermalUtils.setDefaultThermalProfile();
+            applySchedulerHints(null, null);
+        } else {
+            applySchedulerHints(mPreviousApp, mThermalUtils.setThermalProfile(mPreviousApp));
+        }
+    }
+
+    /**
+     * The end of the boost is a single alarm delivered on the main thread,
+     * nothing polls for it.
+     */
+    private void startBoost(long durationMs) {
+        final long until = SystemClock.elapsedRealtime() + durationMs;
+        final AlarmManager am = getSystemService(AlarmManager.class);
+        am.cancel(mBoostEndListener);
+        am.setExact(AlarmManager.ELAPSED_REALTIME_WAKEUP, until, TAG, mBoostEndListener,
+                mHandler);
+        mThermalUtils.setBoostUntil(until);
+        reapplyThermalProfile();
+        refreshTile();
+    }
+
+    private void stopBoost() {
+        getSystemService(AlarmManager.class).cancel(mBoostEndListener);
+        mThermalUtils.setBoostUntil(0);
+        reapplyThermalProfile();
+        refreshTile();
+    }
+
+    private void refreshTile() {
+        // The tile is bound as the current user, while this service runs as the system user
+        final Context context = createContextAsUser(
+                UserHandle.of(ActivityManager.getCurrentUser()), 0);
+        TileService.requestListeningState(context,
+                new ComponentName(context, PerformanceModeTileService.class));
+    }
+
+    private void applySchedulerHints(String packageName, ThermalProfile profile) {
+        if (mSchedulerController == null) {
+            return;
+        }
+        if (packageName == null || profile == null || !profile.hasSchedHints()) {
+            mSchedulerController.apply(null, null);
+            return;
+        }
+        mSchedulerController.apply(profile, getPidsForPackage(packageName));
+    }
+
+    private int[] getPidsForPackage(String packageName) {
+        final ActivityManager am = getSystemService(ActivityManager.class);
+        final List<ActivityManager.RunningAppProcessInfo> processes =
+                am.getRunningAppProcesses();
+        final List<Integer> pids = new ArrayList<>();
+        if (processes != null) {
+            for (ActivityManager.RunningAppProcessInfo info : processes) {
+                if (info.pkgList != null && Arrays.asList(info.pkgList).contains(packageName)) {
+                    pids.add(info.pid);
+                }
+            }
+        }
+        final int[] result = new int[pids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = pids.get(i);
+        }
+        // Sorted so that an unchanged process set compares equal
+        Arrays.sort(result);
+        return result;
     }
 
     private final TaskStackListener mTaskListener = new TaskStackListener() {
         @Override
         public void onTaskStackChanged() {
-            try {
-                final RootTaskInfo info = mActivityTaskManager.getFocusedRootTaskInfo();
-                if (info == null || info.topActivity == null) {
-                    return;
-                }
+            updateForegroundApp(false);
+        }
+    };
 
-                String foregroundApp = info.topActivity.getPackageName();
-                if (!foregroundApp.equals(mPreviousApp)) {
-                    mThermalUtils.setThermalProfile(foregroundApp);
-                    mPreviousApp = foregroundApp;
+    private void updateForegroundApp(boolean force) {
+        try {
+            final RootTaskInfo info = mActivityTaskManager.getFocusedRootTaskInfo();
+            if (info == null || info.topActivity == null) {
+                if (force) {
+                    reapplyThermalProfile();
                 }
-            } catch (RemoteException ignored) {
+                return;
+            }
+
+            String foregroundApp = info.topActivity.getPackageName();
+            if (force || !foregroundApp.equals(mPreviousApp)) {
+                applySchedulerHints(foregroundApp,
+                        mThermalUtils.setThermalProfile(foregroundApp));
+                mPreviousApp = foregroundApp;
             }
+        } catch (RemoteException ignored) {
         }
-    };
+    }
 }
@@ -77,7 +77,7 @@
          mSession.onResume();
          mActivityFilter = new ActivityFilter(getActivity().getPackageManager());
          mAllPackagesAdapter = new AllPackagesAdapter(getActivity());
-         mThermalUtils = new ThermalUtils(getActivity());
+         mThermalUtils = ThermalUtils.getInstance(getActivity());
      }
  
      @Override
@@ -98,6 +98,8 @@
      public void onResume() {
          super.onResume();
          getActivity().setTitle(getResources().getString(R.string.thermal_title));
+         // Imports, the tile and other screens may have changed them meanwhile
+         mThermalUtils.reloadUserSettings();
          rebuild();
      }
  
@@ -188,18 +190,6 @@
          mSession.rebuild(mActivityFilter, ApplicationsState.ALPHA_COMPARATOR);
      }
  
-     private int getStateDrawable(int state) {
-         switch (state) {
-             case ThermalUtils.STATE_GAMING:
-                 return R.drawable.ic_thermal_gaming;
-             case ThermalUtils.STATE_PERF:
-                 return R.drawable.ic_thermal_benchmark;
-             case ThermalUtils.STATE_DEFAULT:
-             default:
-                 return R.drawable.ic_thermal_default;
-         }
-     }
- 
      private class ViewHolder extends RecyclerView.ViewHolder {
          private TextView title;
          private Spinner mode;
@@ -231,25 +221,22 @@
      private class ModeAdapter extends BaseAdapter {
          private final LayoutInflater inflater;
          private final Context context;
-         private final int[] items = {
-             R.string.thermal_default,
-             R.string.thermal_gaming,
-             R.string.thermal_benchmark
-         };
+         private final ThermalProfiles profiles;
  
          private ModeAdapter(Context context) {
              this.context = context;
              this.inflater = LayoutInflater.from(context);
+             this.profiles = mThermalUtils.getProfiles();
          }
  
          @Override
          public int getCount() {
-             return items.length;
+             return profiles.size();
          }
  
          @Override
          public Object getItem(int position) {
-             return context.getString(items[position]);
+             return context.getString(profiles.get(position).labelRes);
          }
  
          @Override
@@ -266,7 +253,7 @@
                  view = (TextView) inflater.inflate(android.R.layout.simple_spinner_item, parent, false);
              }
  
-             view.setText(items[position]);
+             view.setText(profiles.get(position).labelRes);
              view.setTextSize(14f);
              return view;
          }
@@ -280,7 +267,7 @@
                  view = (TextView) inflater.inflate(android.R.layout.simple_spinner_dropdown_item, parent, false);
              }
  
-             view.setText(items[position]);
+             view.setText(profiles.get(position).labelRes);
              view.setTextSize(14f);
              return view;
          }
@@ -326,17 +313,18 @@
              // Store the package name as a tag on the spinner
              holder.mode.setTag(entry.info.packageName);
              
-             // Get the saved state for this package
-             int packageState = mThermalUtils.getStateForPackage(entry.info.packageName);
+             // Get the saved profile for this package
+             ThermalProfile packageProfile =
+                     mThermalUtils.getProfileForPackage(entry.info.packageName);
              
              // Remove existing listener before setting selection
              holder.mode.setOnItemSelectedListener(null);
              
-             // Set the current state
-             holder.mode.setSelection(packageState);
+             // Set the current profile
+             holder.mode.setSelection(packageProfile.index);
              
              // Update the state icon
-             holder.stateIcon.setImageResource(getStateDrawable(packageState));
+             holder.stateIcon.setImageResource(packageProfile.iconRes);
              
              // Add the item selected listener
              holder.mode.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
@@ -352,11 +340,12 @@
                      String packageName = (String) parent.getTag();
                      if (packageName == null) return;
                      
-                     // Save the new state
-                     mThermalUtils.writePackage(packageName, statePosition);
+                     // Save the new profile
+                     ThermalProfile profile = mThermalUtils.getProfiles().get(statePosition);
+                     mThermalUtils.writePackage(packageName, profile);
                      
                      // Update the state icon
-                     holder.stateIcon.setImageResource(getStateDrawable(statePosition));
+                     holder.stateIcon.setImageResource(profile.iconRes);
                  }
          
                  @Override
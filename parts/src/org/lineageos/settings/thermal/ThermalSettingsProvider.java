@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Binder;
+import android.os.Bundle;
+import android.os.UserHandle;
+
+/**
+ * Serves the thermal settings and boost state held by the ThermalService
+ * process to the settings screens and the Quick Settings tile. Runs as a
+ * single user, so that callers running as another user reach the settings
+ * the service stores for them.
+ */
+public class ThermalSettingsProvider extends ContentProvider {
+
+    static final String AUTHORITY = "org.lineageos.settings.thermal";
+
+    /** Returns the calling user's per-app profiles and performance mode. */
+    static final String METHOD_GET_SETTINGS = "get_settings";
+    /** Returns the calling user's performance mode and the end of a running boost. */
+    static final String METHOD_GET_TILE_STATE = "get_tile_state";
+    /** elapsedRealtime at which the running boost ends, 0 when none is running */
+    static final String KEY_BOOST_UNTIL = "boost_until";
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (!METHOD_GET_SETTINGS.equals(method) && !METHOD_GET_TILE_STATE.equals(method)) {
+            return super.call(method, arg, extras);
+        }
+        final int userId = UserHandle.getUserId(Binder.getCallingUid());
+        final long token = Binder.clearCallingIdentity();
+        try {
+            final ThermalUtils utils = ThermalUtils.getInstance(getContext());
+            return METHOD_GET_SETTINGS.equals(method)
+                    ? utils.getUserSettings(userId) : utils.getTileState(userId);
+        } finally {
+            Binder.restoreCallingIdentity(token);
+        }
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection,
+            String[] selectionArgs, String sortOrder) {
+        return null;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        return null;
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        return 0;
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection,
+            String[] selectionArgs) {
+        return 0;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+
+/**
+ * Per-user thermal settings, each backed by a "thermal_<user id>"
+ * SharedPreferences file in this process's own storage, since the
+ * ThermalService process runs as the system user and can't open other
+ * users' data directories. Tables of users that were switched away from stay
+ * resident, least recently used first out, as long as the total number of
+ * rules fits the budget. The active user is swapped with a single
+ * reference assignment once its table has been loaded.
+ *
+ * Only the ThermalService process writes these preferences, for every
+ * user; other processes go through {@link ThermalService} and
+ * {@link ThermalSettingsProvider}.
+ */
+final class ThermalUserStore {
+
+    private static final String TAG = "ThermalUserStore";
+
+    static final String THERMAL_CONTROL = "thermal_control";
+    static final String PERFORMANCE_MODE_ENABLED = "performance_mode_enabled";
+
+    private static final String PREFS_PREFIX = "thermal_";
+
+    private final Context mContext;
+    private final ThermalProfiles mProfiles;
+    private final int mBudget;
+    private final IntPredicate mIsUserUnlocked;
+
+    // Access ordered, so iteration starts at the least recently used user
+    private final LinkedHashMap<Integer, UserProfiles> mResident =
+            new LinkedHashMap<>(4, 0.75f, true);
+    private volatile UserProfiles mActive;
+
+    ThermalUserStore(Context context, ThermalProfiles profiles, int budget) {
+        this(context, profiles, budget, userId -> context.getSystemService(UserManager.class)
+                .isUserUnlocked(UserHandle.of(userId)));
+    }
+
+    ThermalUserStore(Context context, ThermalProfiles profiles, int budget,
+            IntPredicate isUserUnlocked) {
+        mContext = context;
+        mProfiles = profiles;
+        mBudget = budget;
+        mIsUserUnlocked = isUserUnlocked;
+        mActive = new UserProfiles(context.getUserId(), openPrefs(context.getUserId()));
+        mResident.put(mActive.userId, mActive);
+    }
+
+    UserProfiles getActive() {
+        return mActive;
+    }
+
+    /**
+     * Returns the given user's settings without making them active.
+     */
+    UserProfiles get(int userId) {
+        synchronized (this) {
+            final UserProfiles user = mActive.userId == userId ? mActive : mResident.get(userId);
+            if (user != null) {
+                return user;
+            }
+        }
+
+        final UserProfiles user = load(userId);
+        synchronized (this) {
+            if (user.isUnlocked()) {
+                mResident.put(userId, user);
+                trim();
+            }
+        }
+        return user;
+    }
+
+    /**
+     * Makes the given user active. Returns false if it already was.
+     */
+    boolean switchUser(int userId) {
+        UserProfiles user;
+        synchronized (this) {
+            if (mActive.userId == userId && mActive.isUnlocked()) {
+                return false;
+            }
+            user = mResident.get(userId);
+        }
+
+        if (user == null) {
+            user = load(userId);
+        }
+        // Parse before the swap so the first lookup for the new user is a hit
+        user.getTable();
+
+        synchronized (this) {
+            if (user.isUnlocked()) {
+                mResident.put(userId, user);
+            }
+            mActive = user;
+            trim();
+        }
+        return true;
+    }
+
+    /**
+     * Re-reads a user's settings once its credential encrypted storage is
+     * available. Returns true if that user is the active one.
+     */
+    boolean onUserUnlocked(int userId) {
+        synchronized (this) {
+            if (mActive.userId != userId || mActive.isUnlocked()) {
+                return false;
+            }
+        }
+        return switchUser(userId);
+    }
+
+    synchronized boolean isResident(int userId) {
+        return mResident.containsKey(userId);
+    }
+
+    synchronized void dump(PrintWriter pw) {
+        pw.println("ThermalUserStore: active=" + mActive.userId + " budget=" + mBudget);
+        for (UserProfiles user : mResident.values()) {
+            pw.println("  user " + user.userId + ": rules=" + user.size()
+                    + (user.isUnlocked() ? "" : " (locked)"));
+        }
+    }
+
+    private UserProfiles load(int userId) {
+        // A locked user can't run apps, its settings are loaded once it unlocks
+        if (!mIsUserUnlocked.test(userId)) {
+            Log.i(TAG, "User " + userId + " is locked, using defaults until unlocked");
+            return new UserProfiles(userId, null);
+        }
+        return new UserProfiles(userId, openPrefs(userId));
+    }
+
+    private SharedPreferences openPrefs(int userId) {
+        return mContext.getSharedPreferences(PREFS_PREFIX + userId, Context.MODE_PRIVATE);
+    }
+
+    private void trim() {
+        int total = 0;
+        for (UserProfiles user : mResident.values()) {
+            total += user.size();
+        }
+        final Iterator<UserProfiles> it = mResident.values().iterator();
+        while (total > mBudget && it.hasNext()) {
+            final UserProfiles user = it.next();
+            if (user == mActive) {
+                continue;
+            }
+            total -= user.size();
+            it.remove();
+        }
+    }
+
+    /**
+     * One user's settings. The parsed table is kept until the stored value
+     * changes, which costs a reference comparison per lookup.
+     */
+    final class UserProfiles {
+        final int userId;
+
+        private final SharedPreferences mPrefs;  // null while the user is locked
+        private String mValue;
+        private ThermalProfileTable mTable;
+
+        private UserProfiles(int userId, SharedPreferences prefs) {
+            this.userId = userId;
+            mPrefs = prefs;
+        }
+
+        boolean isUnlocked() {
+            return mPrefs != null;
+        }
+
+        /** Returns null while the user is locked. */
+        SharedPreferences getPrefs() {
+            return mPrefs;
+        }
+
+        synchronized ThermalProfileTable getTable() {
+            final String value = mPrefs != null ? mPrefs.getString(THERMAL_CONTROL, null) : null;
+            if (mTable == null || !Objects.equals(value, mValue)) {
+                mValue = value;
+                mTable = ThermalProfileTable.parse(mProfiles, value);
+            }
+            return mTable;
+        }
+
+        boolean isPerformanceModeEnabled() {
+            return mPrefs != null && mPrefs.getBoolean(PERFORMANCE_MODE_ENABLED, false);
+        }
+
+        synchronized int size() {
+            return mTable != null ? mTable.size() : 0;
+        }
+    }
+}
@@ -3,140 +3,324 @@ package org.lineageos.settings.thermal;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.os.SystemProperties;
+import android.os.Bundle;
+import android.os.SystemClock;
 import android.os.UserHandle;
+import android.util.Log;
+
 import androidx.preference.PreferenceManager;
 
+import org.lineageos.settings.R;
+
+import java.io.PrintWriter;
+
 public final class ThermalUtils {
-    private static final String THERMAL_CONTROL = "thermal_control";
-    private static final String PERFORMANCE_MODE_ENABLED = "performance_mode_enabled";
-    
-    protected static final int STATE_DEFAULT = 0;
-    protected static final int STATE_GAMING = 1;
-    protected static final int STATE_PERF = 2;
-    
-    private static final String VENDOR_THERMAL_PROP = "vendor.thermal.mode";
-    private static final String MODE_EQS = "eqs";
-    private static final String MODE_GAME_PERF = "game-perf";
-    private static final String MODE_PERF = "perf";
-    
-    private SharedPreferences mSharedPrefs;
-    private String mCurrentThermalMode = null;  // Cache for current thermal mode
-    
-    protected ThermalUtils(Context context) {
-        mSharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
-        // Initialize current thermal mode from system property
-        mCurrentThermalMode = SystemProperties.get(VENDOR_THERMAL_PROP, MODE_EQS);
-    }
-    
+    private static final String TAG = "ThermalUtils";
+
+    private final Context mContext;
+    private final ThermalProfiles mProfiles;
+    private final ThermalUserStore mUserStore;
+    private final ThermalModeController mModeController;
+    private final ThermalPolicy mPolicy;
+
+    private static ThermalUtils sInstance;
+
+    // elapsedRealtime at which a timed boost ends, 0 when none is running
+    private volatile long mBoostUntil;
+
+    // This process's user's settings as last read from ThermalSettingsProvider,
+    // only used by the settings screens
+    private ThermalProfileTable mUserTable;
+    private boolean mUserPerformanceMode;
+
+    /**
+     * Returns the process wide instance, so that the service, the settings
+     * screens and {@link ThermalSettingsProvider} share cached state.
+     */
+    public static synchronized ThermalUtils getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ThermalUtils(context.getApplicationContext(), PropertyStore.SYSTEM);
+        }
+        return sInstance;
+    }
+
+    ThermalUtils(Context context, PropertyStore store) {
+        mContext = context;
+        mProfiles = ThermalProfiles.get(context);
+        mUserStore = new ThermalUserStore(context, mProfiles,
+                context.getResources().getInteger(R.integer.config_thermalUserTableBudget));
+        // Current thermal mode is seeded from, and kept in sync with, the system property
+        mModeController = new ThermalModeController(store, SystemClock::elapsedRealtime,
+                mProfiles.getDefault().value);
+        mPolicy = new ThermalPolicy(context, mProfiles);
+    }
+
     public static void startService(Context context) {
         context.startServiceAsUser(new Intent(context, ThermalService.class),
                 UserHandle.CURRENT);
     }
 
+    /**
+     * Hands settings that earlier versions kept in this user's default
+     * preferences to {@link ThermalService}, which now stores them, and
+     * drops the local copy. Does nothing once they have been handed over.
+     */
+    public static void migrateLegacySettings(Context context) {
+        final SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        if (!prefs.contains(ThermalUserStore.THERMAL_CONTROL)
+                && !prefs.contains(ThermalUserStore.PERFORMANCE_MODE_ENABLED)) {
+            return;
+        }
+        context.startServiceAsUser(new Intent(context, ThermalService.class)
+                .setAction(ThermalService.ACTION_MIGRATE_SETTINGS)
+                .putExtra(ThermalService.EXTRA_USER_ID, context.getUserId())
+                .putExtra(ThermalService.EXTRA_TABLE,
+                        prefs.getString(ThermalUserStore.THERMAL_CONTROL, null))
+                .putExtra(ThermalService.EXTRA_ENABLED,
+                        prefs.getBoolean(ThermalUserStore.PERFORMANCE_MODE_ENABLED, false)),
+                UserHandle.CURRENT);
+        prefs.edit()
+                .remove(ThermalUserStore.THERMAL_CONTROL)
+                .remove(ThermalUserStore.PERFORMANCE_MODE_ENABLED)
+                .apply();
+    }
+
+    protected ThermalProfiles getProfiles() {
+        return mProfiles;
+    }
+
+    /**
+     * Makes the given user's profiles the active ones. Returns true if the
+     * foreground app needs to be re-evaluated.
+     */
+    protected boolean switchUser(int userId) {
+        return mUserStore.switchUser(userId);
+    }
+
+    protected boolean onUserUnlocked(int userId) {
+        return mUserStore.onUserUnlocked(userId);
+    }
+
     protected boolean isPerformanceModeEnabled() {
-        return mSharedPrefs.getBoolean(PERFORMANCE_MODE_ENABLED, false);
+        return mUserStore.getActive().isPerformanceModeEnabled();
+    }
+
+    protected boolean isBoostActive() {
+        return mBoostUntil > SystemClock.elapsedRealtime();
     }
 
+    /**
+     * Only records the boost, scheduling its end and re-applying the
+     * profile is up to {@link ThermalService}.
+     */
+    protected void setBoostUntil(long elapsedRealtime) {
+        mBoostUntil = elapsedRealtime;
+    }
+
+    /**
+     * Hands the change to {@link ThermalService}, which persists it for this
+     * process's user and re-applies the foreground profile including its
+     * scheduler hints.
+     */
     protected void setPerformanceModeEnabled(boolean enabled) {
-        mSharedPrefs.edit().putBoolean(PERFORMANCE_MODE_ENABLED, enabled).apply();
-        // Immediately apply the new thermal mode
-        if (enabled) {
-            SystemProperties.set(VENDOR_THERMAL_PROP, MODE_GAME_PERF);
-            mCurrentThermalMode = MODE_GAME_PERF;
-        } else {
-            setDefaultThermalProfile();
+        synchronized (this) {
+            mUserPerformanceMode = enabled;
         }
+        mContext.startServiceAsUser(new Intent(mContext, ThermalService.class)
+                .setAction(ThermalService.ACTION_SET_PERFORMANCE_MODE)
+                .putExtra(ThermalService.EXTRA_USER_ID, mContext.getUserId())
+                .putExtra(ThermalService.EXTRA_ENABLED, enabled), UserHandle.CURRENT);
     }
-    
-    private void writeValue(String profiles) {
-        mSharedPrefs.edit().putString(THERMAL_CONTROL, profiles).apply();
+
+    /**
+     * Hands the change to {@link ThermalService}, which persists it for this
+     * process's user and re-applies the foreground profile.
+     */
+    protected void writePackage(String packageName, ThermalProfile profile) {
+        getUserTable().put(packageName, profile);
+        mContext.startServiceAsUser(new Intent(mContext, ThermalService.class)
+                .setAction(ThermalService.ACTION_SET_PACKAGE_PROFILE)
+                .putExtra(ThermalService.EXTRA_USER_ID, mContext.getUserId())
+                .putExtra(ThermalService.EXTRA_PACKAGE, packageName)
+                .putExtra(ThermalService.EXTRA_PROFILE, profile.id), UserHandle.CURRENT);
     }
-    
-    private String getValue() {
-        String value = mSharedPrefs.getString(THERMAL_CONTROL, null);
-        if (value == null || value.isEmpty()) {
-            value = "gaming=:benchmark=";
-            writeValue(value);
+
+    /**
+     * Re-reads this process's user's settings from the ThermalService process,
+     * which owns them. Settings screens call this before showing them.
+     */
+    protected void reloadUserSettings() {
+        final Bundle settings = mContext.getContentResolver().call(
+                ThermalSettingsProvider.AUTHORITY, ThermalSettingsProvider.METHOD_GET_SETTINGS,
+                null, null);
+        synchronized (this) {
+            mUserTable = ThermalProfileTable.parse(mProfiles, settings != null
+                    ? settings.getString(ThermalUserStore.THERMAL_CONTROL) : null);
+            mUserPerformanceMode = settings != null
+                    && settings.getBoolean(ThermalUserStore.PERFORMANCE_MODE_ENABLED);
         }
-        return value;
-    }
-    
-    protected void writePackage(String packageName, int mode) {
-        String value = getValue();
-        String[] modes = value.split(":");
-        
-        // Remove package from all modes first
-        modes[0] = modes[0].replace(packageName + ",", "");
-        modes[1] = modes[1].replace(packageName + ",", "");
-        
-        // Add package to appropriate mode
-        switch (mode) {
-            case STATE_GAMING:
-                modes[0] = modes[0] + packageName + ",";
-                break;
-            case STATE_PERF:
-                modes[1] = modes[1] + packageName + ",";
-                break;
+    }
+
+    private synchronized ThermalProfileTable getUserTable() {
+        if (mUserTable == null) {
+            reloadUserSettings();
         }
-        
-        writeValue(modes[0] + ":" + modes[1]);
-    }
-    
-    protected int getStateForPackage(String packageName) {
-        String value = getValue();
-        String[] modes = value.split(":");
-        
-        if (modes[0].contains(packageName + ",")) {
-            return STATE_GAMING;
-        } else if (modes[1].contains(packageName + ",")) {
-            return STATE_PERF;
+        return mUserTable;
+    }
+
+    /** Profile of a package as shown to this process's user. */
+    protected ThermalProfile getProfileForPackage(String packageName) {
+        return getUserTable().get(packageName);
+    }
+
+    /** "Always Use Performance Mode" as shown to this process's user. */
+    protected synchronized boolean isUserPerformanceModeEnabled() {
+        getUserTable();
+        return mUserPerformanceMode;
+    }
+
+    /** Serves {@link #reloadUserSettings} in the ThermalService process. */
+    Bundle getUserSettings(int userId) {
+        final ThermalUserStore.UserProfiles user = mUserStore.get(userId);
+        final Bundle settings = new Bundle();
+        settings.putString(ThermalUserStore.THERMAL_CONTROL, user.getTable().serialize());
+        settings.putBoolean(ThermalUserStore.PERFORMANCE_MODE_ENABLED,
+                user.isPerformanceModeEnabled());
+        return settings;
+    }
+
+    /** Serves the tile's state in the ThermalService process. */
+    Bundle getTileState(int userId) {
+        final Bundle state = new Bundle();
+        state.putBoolean(ThermalUserStore.PERFORMANCE_MODE_ENABLED,
+                mUserStore.get(userId).isPerformanceModeEnabled());
+        state.putLong(ThermalSettingsProvider.KEY_BOOST_UNTIL,
+                isBoostActive() ? mBoostUntil : 0);
+        return state;
+    }
+
+    protected int getActiveUserId() {
+        return mUserStore.getActive().userId;
+    }
+
+    /**
+     * Stores settings handed over by {@link #migrateLegacySettings} unless the
+     * user already has settings here, which then take precedence. Returns true
+     * if they were stored for the active user.
+     */
+    protected synchronized boolean saveLegacySettings(int userId, String table,
+            boolean performanceMode) {
+        final ThermalUserStore.UserProfiles user = mUserStore.get(userId);
+        final SharedPreferences prefs = getWritablePrefs(user);
+        if (prefs == null || prefs.contains(ThermalUserStore.THERMAL_CONTROL)
+                || prefs.contains(ThermalUserStore.PERFORMANCE_MODE_ENABLED)) {
+            return false;
         }
-        return STATE_DEFAULT;
-    }
-    
-    protected void setThermalProfile(String packageName) {
-        // If performance mode is enabled, always use game-perf
-        if (isPerformanceModeEnabled()) {
-            if (!MODE_GAME_PERF.equals(mCurrentThermalMode)) {
-                SystemProperties.set(VENDOR_THERMAL_PROP, MODE_GAME_PERF);
-                mCurrentThermalMode = MODE_GAME_PERF;
-            }
-            return;
+        prefs.edit()
+                .putString(ThermalUserStore.THERMAL_CONTROL, table)
+                .putBoolean(ThermalUserStore.PERFORMANCE_MODE_ENABLED, performanceMode)
+                .apply();
+        return user == mUserStore.getActive();
+    }
+
+    /**
+     * Only persists the setting, re-applying is up to {@link ThermalService}.
+     * Returns true if the user is the active one.
+     */
+    protected boolean savePerformanceModeEnabled(int userId, boolean enabled) {
+        final ThermalUserStore.UserProfiles user = mUserStore.get(userId);
+        final SharedPreferences prefs = getWritablePrefs(user);
+        if (prefs != null) {
+            prefs.edit().putBoolean(ThermalUserStore.PERFORMANCE_MODE_ENABLED, enabled).apply();
         }
+        return user == mUserStore.getActive();
+    }
 
-        // Otherwise, use the normal app-based profile switching
-        String value = getValue();
-        String[] modes = value.split(":");
-        String newThermalMode = MODE_EQS;
-        
-        if (modes[0].contains(packageName + ",")) {
-            newThermalMode = MODE_GAME_PERF; 
-        } else if (modes[1].contains(packageName + ",")) {
-            newThermalMode = MODE_PERF; 
+    /**
+     * Only persists the assignment, re-applying is up to {@link ThermalService}.
+     * Returns true if the user is the active one.
+     */
+    protected synchronized boolean savePackageProfile(int userId, String packageName,
+            ThermalProfile profile) {
+        final ThermalUserStore.UserProfiles user = mUserStore.get(userId);
+        final SharedPreferences prefs = getWritablePrefs(user);
+        if (prefs != null) {
+            final ThermalProfileTable table = new ThermalProfileTable(user.getTable());
+            table.put(packageName, profile);
+            prefs.edit().putString(ThermalUserStore.THERMAL_CONTROL, table.serialize()).apply();
         }
-        
-        // Only write the property if the thermal mode has changed
-        if (!newThermalMode.equals(mCurrentThermalMode)) {
-            SystemProperties.set(VENDOR_THERMAL_PROP, newThermalMode);
-            mCurrentThermalMode = newThermalMode;
+        return user == mUserStore.getActive();
+    }
+
+    private ThermalProfileTable getTable() {
+        return mUserStore.getActive().getTable();
+    }
+
+    private SharedPreferences getWritablePrefs(ThermalUserStore.UserProfiles user) {
+        final SharedPreferences prefs = user.getPrefs();
+        if (prefs == null) {
+            Log.w(TAG, "User " + user.userId + " is locked, not saving");
         }
+        return prefs;
     }
-    
-    protected void setDefaultThermalProfile() {
-        // If performance mode is enabled, keep using game-perf
-        if (isPerformanceModeEnabled()) {
-            if (!MODE_GAME_PERF.equals(mCurrentThermalMode)) {
-                SystemProperties.set(VENDOR_THERMAL_PROP, MODE_GAME_PERF);
-                mCurrentThermalMode = MODE_GAME_PERF;
-            }
-            return;
+
+    /** Returns a copy of the user's per-app profiles that can be modified freely. */
+    protected ThermalProfileTable copyTable(int userId) {
+        return new ThermalProfileTable(mUserStore.get(userId).getTable());
+    }
+
+    /**
+     * Replaces all of the user's per-app profiles at once and flushes them to
+     * disk before returning. Callers re-apply the foreground profile afterwards.
+     */
+    protected synchronized boolean replaceTable(int userId, ThermalProfileTable table) {
+        final SharedPreferences prefs = getWritablePrefs(mUserStore.get(userId));
+        return prefs != null && prefs.edit()
+                .putString(ThermalUserStore.THERMAL_CONTROL, table.serialize()).commit();
+    }
+
+    /**
+     * Returns the profile in effect after policy, which may differ from the
+     * one assigned to the package.
+     */
+    protected ThermalProfile setThermalProfile(String packageName) {
+        // If performance mode or a boost is enabled, always use the performance profile
+        if (isPerformanceModeEnabled() || isBoostActive()) {
+            return applyThermalProfile(mProfiles.getPerformanceProfile(), true);
         }
 
-        // Only write the property if we're not already in default mode
-        if (!MODE_EQS.equals(mCurrentThermalMode)) {
-            SystemProperties.set(VENDOR_THERMAL_PROP, MODE_EQS);
-            mCurrentThermalMode = MODE_EQS;
+        // Otherwise, use the normal app-based profile switching.
+        // Only writes the property if the thermal mode has changed
+        return applyThermalProfile(getTable().get(packageName), true);
+    }
+
+    protected ThermalProfile setDefaultThermalProfile() {
+        // If performance mode or a boost is enabled, keep using the performance profile
+        if (isPerformanceModeEnabled() || isBoostActive()) {
+            return applyThermalProfile(mProfiles.getPerformanceProfile(), false);
         }
+
+        // Only writes the property if we're not already in default mode
+        return applyThermalProfile(mProfiles.getDefault(), false);
+    }
+
+    protected boolean onBatteryChanged(Intent intent) {
+        return mPolicy.onBatteryChanged(intent);
+    }
+
+    private ThermalProfile applyThermalProfile(ThermalProfile requested, boolean foreground) {
+        ThermalProfile effective = mPolicy.apply(requested, foreground);
+        mModeController.apply(effective.value);
+        return effective;
+    }
+
+    protected void dump(PrintWriter pw) {
+        pw.println("ThermalUtils:");
+        pw.println("  performanceMode=" + isPerformanceModeEnabled()
+                + " boostActive=" + isBoostActive());
+        pw.println("  profiles=" + mProfiles.getAll() + " assigned=" + getTable().size());
+        mUserStore.dump(pw);
+        mModeController.dump(pw);
+        mPolicy.dump(pw);
     }
-}
\ No newline at end of file
+}
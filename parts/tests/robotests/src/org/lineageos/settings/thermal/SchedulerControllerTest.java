@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+
+@RunWith(RobolectricTestRunner.class)
+public class SchedulerControllerTest {
+
+    private static final String UCLAMP_MIN = "dev/cpuctl/top-app/cpu.uclamp.min";
+    private static final String UCLAMP_MAX = "dev/cpuctl/top-app/cpu.uclamp.max";
+    private static final String TOP_APP_PROCS = "dev/cpuset/top-app/cgroup.procs";
+    private static final String FOREGROUND_PROCS = "dev/cpuset/foreground/cgroup.procs";
+    private static final String PID_CPUSET = "proc/123/cpuset";
+
+    private static final ThermalProfile UCLAMP = new ThermalProfile(1, "gaming", "game-perf",
+            1, 0, 0, "20", null, null);
+    private static final ThermalProfile CPUSET = new ThermalProfile(2, "benchmark", "perf",
+            2, 0, 0, null, null, "top-app");
+    private static final int[] PIDS = { 123 };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private CgroupFs mFs;
+    private File mJournal;
+
+    @Before
+    public void setUp() throws IOException {
+        File root = mFolder.newFolder("root");
+        for (String dir : new String[] { "dev/cpuctl/top-app", "dev/cpuset/top-app",
+                "dev/cpuset/foreground", "proc/123" }) {
+            new File(root, dir).mkdirs();
+        }
+        mFs = new CgroupFs(root);
+        mFs.write(UCLAMP_MIN, "0.00");
+        mFs.write(UCLAMP_MAX, "max");
+        mFs.write(TOP_APP_PROCS, "");
+        mFs.write(FOREGROUND_PROCS, "");
+        mFs.write(PID_CPUSET, "/foreground");
+        mJournal = new File(mFolder.getRoot(), "sched_hints.journal");
+    }
+
+    private SchedulerController newController() {
+        return new SchedulerController(mFs, mJournal, "top-app");
+    }
+
+    @Test
+    public void fsRoundTripsFirstLine() {
+        assertTrue(mFs.write(UCLAMP_MIN, " 42.00 \nignored"));
+        assertEquals("42.00", mFs.read(UCLAMP_MIN));
+        assertNull(mFs.read("dev/missing"));
+        assertFalse(mFs.write("dev/missing/node", "1"));
+    }
+
+    @Test
+    public void uclampIsAppliedAndReverted() {
+        SchedulerController controller = newController();
+
+        controller.apply(UCLAMP, PIDS);
+        assertEquals("20", mFs.read(UCLAMP_MIN));
+        assertEquals("max", mFs.read(UCLAMP_MAX));
+        assertTrue(mJournal.exists());
+
+        // The kernel reports the clamp in its own format
+        mFs.write(UCLAMP_MIN, "20.00");
+        controller.revert();
+        assertEquals("0.00", mFs.read(UCLAMP_MIN));
+        assertFalse(mJournal.exists());
+    }
+
+    @Test
+    public void uclampChangedByOthersIsNotRestored() {
+        SchedulerController controller = newController();
+        controller.apply(UCLAMP, PIDS);
+
+        mFs.write(UCLAMP_MIN, "10.00");
+        controller.revert();
+
+        assertEquals("10.00", mFs.read(UCLAMP_MIN));
+    }
+
+    @Test
+    public void processIsMovedAndMovedBack() {
+        SchedulerController controller = newController();
+
+        controller.apply(CPUSET, PIDS);
+        assertEquals("123", mFs.read(TOP_APP_PROCS));
+
+        mFs.write(PID_CPUSET, "/top-app");
+        controller.apply(null, null);
+        assertEquals("123", mFs.read(FOREGROUND_PROCS));
+    }
+
+    @Test
+    public void processMovedByOthersIsLeftAlone() {
+        SchedulerController controller = newController();
+        controller.apply(CPUSET, PIDS);
+
+        mFs.write(PID_CPUSET, "/background");
+        controller.revert();
+
+        assertNull(mFs.read(FOREGROUND_PROCS));
+    }
+
+    @Test
+    public void journalIsReplayedByNextInstance() {
+        newController().apply(UCLAMP, PIDS);
+        mFs.write(UCLAMP_MIN, "20.00");
+
+        // A new instance stands in for a restarted service
+        newController();
+
+        assertEquals("0.00", mFs.read(UCLAMP_MIN));
+        assertFalse(mJournal.exists());
+    }
+}
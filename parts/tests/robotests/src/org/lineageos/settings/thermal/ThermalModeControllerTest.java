@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public class ThermalModeControllerTest {
+
+    private static final String PROP = ThermalModeController.VENDOR_THERMAL_PROP;
+
+    private FakePropertyStore mStore;
+    private long mNow;
+
+    @Before
+    public void setUp() {
+        mStore = new FakePropertyStore();
+        mNow = 1000;
+    }
+
+    private ThermalModeController newController() {
+        return new ThermalModeController(mStore, () -> mNow, "eqs");
+    }
+
+    @Test
+    public void seedsFromPropertyOrFallback() {
+        assertEquals("eqs", newController().getCurrentMode());
+
+        mStore.values.put(PROP, "perf");
+        assertEquals("perf", newController().getCurrentMode());
+    }
+
+    @Test
+    public void applyWritesOnlyOnChange() {
+        ThermalModeController controller = newController();
+
+        assertTrue(controller.apply("game-perf"));
+        assertTrue(controller.apply("game-perf"));
+
+        assertEquals("game-perf", mStore.values.get(PROP));
+        assertEquals(1, mStore.writes);
+    }
+
+    @Test
+    public void externalChangeIsDetectedAndAdopted() {
+        ThermalModeController controller = newController();
+        controller.apply("perf");
+
+        mStore.values.put(PROP, "game-perf");
+
+        assertTrue(controller.sync());
+        assertFalse(controller.sync());
+        assertEquals("game-perf", controller.getCurrentMode());
+        assertEquals(1, controller.getDriftCount());
+    }
+
+    @Test
+    public void applyRewritesAfterExternalChange() {
+        ThermalModeController controller = newController();
+        controller.apply("perf");
+        mStore.values.put(PROP, "eqs");
+
+        // The cache still says perf, but the property doesn't
+        assertTrue(controller.apply("perf"));
+
+        assertEquals("perf", mStore.values.get(PROP));
+        assertEquals(1, controller.getDriftCount());
+    }
+
+    @Test
+    public void rejectedWriteIsRetried() {
+        ThermalModeController controller = newController();
+        mStore.failuresLeft = 2;
+
+        assertTrue(controller.apply("perf"));
+
+        assertEquals("perf", controller.getCurrentMode());
+        assertEquals(3, mStore.writes);
+        assertEquals(0, controller.getFailureCount());
+    }
+
+    @Test
+    public void unobservedWriteIsRetried() {
+        ThermalModeController controller = newController();
+        mStore.ignoredLeft = 1;
+
+        assertTrue(controller.apply("perf"));
+
+        assertEquals(2, mStore.writes);
+        assertEquals("perf", mStore.values.get(PROP));
+    }
+
+    @Test
+    public void persistentFailureIsCountedAndCacheResynced() {
+        ThermalModeController controller = newController();
+        mStore.failuresLeft = Integer.MAX_VALUE;
+
+        assertFalse(controller.apply("perf"));
+
+        assertEquals("eqs", controller.getCurrentMode());
+        assertEquals(1, controller.getFailureCount());
+        assertEquals(3, mStore.writes);
+    }
+
+    @Test
+    public void latencyIsMeasuredFromWriteToObservedValue() {
+        ThermalModeController controller = newController();
+        mStore.onSet = () -> mNow += 7;
+
+        controller.apply("perf");
+
+        assertEquals(7, controller.getLastApplyLatencyMillis());
+    }
+
+    private static final class FakePropertyStore implements PropertyStore {
+        final Map<String, String> values = new HashMap<>();
+        int writes;
+        int failuresLeft;
+        int ignoredLeft;
+        Runnable onSet;
+
+        @Override
+        public String get(String key, String def) {
+            String value = values.get(key);
+            return value != null ? value : def;
+        }
+
+        @Override
+        public void set(String key, String value) {
+            writes++;
+            if (onSet != null) {
+                onSet.run();
+            }
+            if (failuresLeft > 0) {
+                failuresLeft--;
+                throw new RuntimeException("failed to set system property");
+            }
+            if (ignoredLeft > 0) {
+                ignoredLeft--;
+                return;
+            }
+            values.put(key, value);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+import static org.junit.Assert.assertSame;
+
+import android.content.Intent;
+import android.os.BatteryManager;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class ThermalPolicyTest {
+
+    private static final ThermalProfile DEFAULT =
+            new ThermalProfile(0, "default", "eqs", 0, 0, 0);
+    private static final ThermalProfile GAMING =
+            new ThermalProfile(1, "gaming", "game-perf", 1, 0, 0);
+    private static final ThermalProfile BENCHMARK =
+            new ThermalProfile(2, "benchmark", "perf", 2, 0, 0);
+
+    private final ThermalPolicy mPolicy = new ThermalPolicy(15, DEFAULT, 450, DEFAULT,
+            BatteryManager.BATTERY_PLUGGED_AC, GAMING);
+
+    private static Intent battery(int level, int plugged, int temperature) {
+        return new Intent(Intent.ACTION_BATTERY_CHANGED)
+                .putExtra(BatteryManager.EXTRA_LEVEL, level)
+                .putExtra(BatteryManager.EXTRA_SCALE, 100)
+                .putExtra(BatteryManager.EXTRA_PLUGGED, plugged)
+                .putExtra(BatteryManager.EXTRA_TEMPERATURE, temperature);
+    }
+
+    @Test
+    public void chargingLiftsForegroundRequestsOnly() {
+        mPolicy.onBatteryChanged(battery(80, BatteryManager.BATTERY_PLUGGED_AC, 300));
+
+        assertSame(GAMING, mPolicy.apply(DEFAULT, true));
+        assertSame(BENCHMARK, mPolicy.apply(BENCHMARK, true));
+        assertSame(DEFAULT, mPolicy.apply(DEFAULT, false));
+    }
+
+    @Test
+    public void lowBatteryCapsWithHysteresis() {
+        mPolicy.onBatteryChanged(battery(15, 0, 300));
+        assertSame(DEFAULT, mPolicy.apply(BENCHMARK, true));
+
+        mPolicy.onBatteryChanged(battery(17, 0, 300));
+        assertSame(DEFAULT, mPolicy.apply(BENCHMARK, true));
+
+        mPolicy.onBatteryChanged(battery(18, 0, 300));
+        assertSame(BENCHMARK, mPolicy.apply(BENCHMARK, true));
+    }
+
+    @Test
+    public void hotAndLowBatteryCapsStack() {
+        ThermalPolicy policy = new ThermalPolicy(15, DEFAULT, 450, GAMING,
+                BatteryManager.BATTERY_PLUGGED_AC, GAMING);
+
+        policy.onBatteryChanged(battery(80, 0, 460));
+        assertSame(GAMING, policy.apply(BENCHMARK, true));
+
+        policy.onBatteryChanged(battery(10, 0, 460));
+        assertSame(DEFAULT, policy.apply(BENCHMARK, true));
+
+        policy.onBatteryChanged(battery(10, 0, 300));
+        assertSame(DEFAULT, policy.apply(BENCHMARK, true));
+    }
+
+    @Test
+    public void hotBatteryOverridesChargingLift() {
+        mPolicy.onBatteryChanged(battery(80, BatteryManager.BATTERY_PLUGGED_AC, 460));
+
+        assertSame(DEFAULT, mPolicy.apply(BENCHMARK, true));
+        assertSame(DEFAULT, mPolicy.apply(DEFAULT, true));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+@RunWith(RobolectricTestRunner.class)
+public class ThermalProfileCodecTest {
+
+    private final ThermalProfiles mProfiles = new ThermalProfiles(Arrays.asList(
+            new ThermalProfile(0, "default", "eqs", 0, 0, 0),
+            new ThermalProfile(1, "gaming", "game-perf", 1, 0, 0),
+            new ThermalProfile(2, "benchmark", "perf", 2, 0, 0)), "default", "gaming");
+
+    private int read(String input, ThermalProfileTable table) throws IOException {
+        return ThermalProfileCodec.read(new StringReader(input), mProfiles, table);
+    }
+
+    @Test
+    public void roundTrips() throws IOException {
+        ThermalProfileTable table = new ThermalProfileTable(mProfiles);
+        table.put("com.example.game", mProfiles.getById("gaming"));
+        table.put("com.example.bench", mProfiles.getById("benchmark"));
+
+        StringWriter out = new StringWriter();
+        ThermalProfileCodec.write(table, mProfiles, out);
+        ThermalProfileTable copy = new ThermalProfileTable(mProfiles);
+
+        assertEquals(2, read(out.toString(), copy));
+        assertEquals(table.getAssignments(), copy.getAssignments());
+    }
+
+    @Test
+    public void skipsCommentsAndBlankLines() throws IOException {
+        ThermalProfileTable table = new ThermalProfileTable(mProfiles);
+
+        assertEquals(1, read("thermal-profiles 1\n# comment\n\n[gaming]\n  com.a  \n", table));
+        assertSame(mProfiles.getById("gaming"), table.get("com.a"));
+    }
+
+    @Test
+    public void errorsDoNotEchoInput() {
+        String[] inputs = {
+            "secret-header\n",
+            "thermal-profiles 1\n[secret]\n",
+            "thermal-profiles 1\n[gaming]\nsecret/value\n",
+        };
+        for (String input : inputs) {
+            try {
+                read(input, new ThermalProfileTable(mProfiles));
+                fail("Accepted " + input);
+            } catch (IOException e) {
+                assertFalse(e.getMessage(), e.getMessage().contains("secret"));
+            }
+        }
+    }
+}
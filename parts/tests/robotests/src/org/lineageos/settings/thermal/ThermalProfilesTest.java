@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+
+@RunWith(RobolectricTestRunner.class)
+public class ThermalProfilesTest {
+
+    private static ThermalProfile profile(int index, String id, String value, int rank) {
+        return new ThermalProfile(index, id, value, rank, 0, 0);
+    }
+
+    @Test
+    public void loadsShippedRegistry() {
+        ThermalProfiles profiles = ThermalProfiles.get(RuntimeEnvironment.getApplication());
+
+        assertTrue(profiles.size() > 0);
+        for (int i = 0; i < profiles.size(); i++) {
+            ThermalProfile profile = profiles.get(i);
+            assertEquals(i, profile.index);
+            assertTrue(profile.labelRes != 0 && profile.iconRes != 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDuplicateId() {
+        new ThermalProfiles(Arrays.asList(profile(0, "default", "eqs", 0),
+                profile(1, "default", "perf", 1)), "default", "default");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDuplicateValue() {
+        new ThermalProfiles(Arrays.asList(profile(0, "default", "eqs", 0),
+                profile(1, "gaming", "eqs", 1)), "default", "gaming");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownDefault() {
+        new ThermalProfiles(Arrays.asList(profile(0, "default", "eqs", 0)),
+                "missing", "default");
+    }
+}
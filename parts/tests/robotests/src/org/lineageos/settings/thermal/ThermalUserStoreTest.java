@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.settings.thermal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+@RunWith(RobolectricTestRunner.class)
+public class ThermalUserStoreTest {
+
+    private final ThermalProfiles mProfiles = new ThermalProfiles(Arrays.asList(
+            new ThermalProfile(0, "default", "eqs", 0, 0, 0),
+            new ThermalProfile(1, "gaming", "game-perf", 1, 0, 0),
+            new ThermalProfile(2, "benchmark", "perf", 2, 0, 0)), "default", "gaming");
+
+    private final Set<Integer> mUnlocked = new HashSet<>();
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.getApplication();
+        mUnlocked.add(mContext.getUserId());
+    }
+
+    private ThermalUserStore newStore(int budget) {
+        return new ThermalUserStore(mContext, mProfiles, budget, mUnlocked::contains);
+    }
+
+    private void seed(int userId, String table) {
+        mContext.getSharedPreferences("thermal_" + userId, Context.MODE_PRIVATE).edit()
+                .putString(ThermalUserStore.THERMAL_CONTROL, table)
+                .commit();
+    }
+
+    @Test
+    public void switchHandsOverToTheNewUser() {
+        seed(0, "benchmark=com.example.app");
+        seed(10, "gaming=com.example.app");
+        mUnlocked.add(10);
+        ThermalUserStore store = newStore(100);
+
+        assertTrue(store.switchUser(10));
+        assertFalse(store.switchUser(10));
+        assertEquals(10, store.getActive().userId);
+        assertSame(mProfiles.getById("gaming"),
+                store.getActive().getTable().get("com.example.app"));
+
+        ThermalUserStore.UserProfiles user10 = store.getActive();
+        assertTrue(store.switchUser(0));
+        assertSame(mProfiles.getById("benchmark"),
+                store.getActive().getTable().get("com.example.app"));
+        // Switching back reuses the resident table
+        assertSame(user10, store.get(10));
+    }
+
+    @Test
+    public void lockedUserLoadsOnceUnlocked() {
+        seed(10, "gaming=com.example.app");
+        ThermalUserStore store = newStore(100);
+
+        assertTrue(store.switchUser(10));
+        assertFalse(store.getActive().isUnlocked());
+        assertNull(store.getActive().getPrefs());
+        assertSame(mProfiles.getDefault(), store.getActive().getTable().get("com.example.app"));
+        assertFalse(store.isResident(10));
+
+        assertFalse(store.onUserUnlocked(11));
+        mUnlocked.add(10);
+        assertTrue(store.onUserUnlocked(10));
+        assertFalse(store.onUserUnlocked(10));
+
+        assertTrue(store.getActive().isUnlocked());
+        assertSame(mProfiles.getById("gaming"),
+                store.getActive().getTable().get("com.example.app"));
+        assertTrue(store.isResident(10));
+    }
+
+    @Test
+    public void budgetEvictsLeastRecentlyUsedUsers() {
+        seed(10, "gaming=com.example.a,com.example.b");
+        seed(11, "gaming=com.example.a,com.example.b");
+        seed(12, "gaming=com.example.a,com.example.b");
+        mUnlocked.addAll(Arrays.asList(10, 11, 12));
+        ThermalUserStore store = newStore(4);
+
+        store.switchUser(10);
+        store.switchUser(11);
+        assertTrue(store.isResident(10));
+        // Touching user 10 leaves user 11 as the least recently used one
+        store.get(10);
+        store.switchUser(12);
+
+        assertTrue(store.isResident(10));
+        assertFalse(store.isResident(11));
+        assertTrue(store.isResident(12));
+    }
+
+    @Test
+    public void activeUserIsNeverEvicted() {
+        seed(10, "gaming=com.example.a,com.example.b");
+        mUnlocked.add(10);
+        ThermalUserStore store = newStore(1);
+
+        store.switchUser(10);
+
+        assertTrue(store.isResident(10));
+        assertEquals(10, store.getActive().userId);
+        assertSame(mProfiles.getById("gaming"),
+                store.getActive().getTable().get("com.example.b"));
+    }
+}